@@ -0,0 +1,206 @@
+package com.hivemq.plugin.callbacks;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.hivemq.spi.callback.cluster.ClusterNodeAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probes discovered nodes with non-blocking TCP connects, so nodes which crashed before their
+ * file expired are not handed to HiveMQ first.
+ * <p>
+ * All connects are started at once and awaited on a single selector until the timeout is reached.
+ * Host names are resolved within the same timeout, nodes which are not resolved in time count as unreachable.
+ * Results are cached for a short time to avoid probing the same nodes on every discovery run.
+ */
+public class NodeReachabilityChecker {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeReachabilityChecker.class);
+
+    private final long timeoutMillis;
+    private final Cache<String, Boolean> reachabilityCache;
+
+    /**
+     * @param timeoutMillis   the total time all probes of one check may take
+     * @param cacheTtlSeconds the time results are cached, 0 disables the cache
+     */
+    public NodeReachabilityChecker(final long timeoutMillis, final long cacheTtlSeconds) {
+        this.timeoutMillis = timeoutMillis;
+        this.reachabilityCache = cacheTtlSeconds > 0
+                ? CacheBuilder.newBuilder().expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS).<String, Boolean>build()
+                : null;
+    }
+
+    /**
+     * @param addresses the addresses to check
+     * @return all addresses, the reachable ones first. The order within both groups is kept.
+     */
+    public List<ClusterNodeAddress> sortByReachability(final List<ClusterNodeAddress> addresses) {
+
+        final Map<String, Boolean> results = new HashMap<>();
+        final List<ClusterNodeAddress> unknown = new ArrayList<>();
+        for (ClusterNodeAddress address : addresses) {
+            final String cacheKey = cacheKey(address);
+            final Boolean cached = reachabilityCache != null ? reachabilityCache.getIfPresent(cacheKey) : null;
+            if (cached != null) {
+                results.put(cacheKey, cached);
+            } else {
+                unknown.add(address);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            probe(unknown, results);
+        }
+
+        final List<ClusterNodeAddress> reachable = new ArrayList<>(addresses.size());
+        final List<ClusterNodeAddress> unreachable = new ArrayList<>();
+        for (ClusterNodeAddress address : addresses) {
+            if (Boolean.TRUE.equals(results.get(cacheKey(address)))) {
+                reachable.add(address);
+            } else {
+                unreachable.add(address);
+            }
+        }
+
+        if (!unreachable.isEmpty()) {
+            log.debug("{} of {} discovered nodes are not reachable", unreachable.size(), addresses.size());
+        }
+
+        reachable.addAll(unreachable);
+        return reachable;
+    }
+
+    private void probe(final List<ClusterNodeAddress> addresses, final Map<String, Boolean> results) {
+
+        final Selector selector;
+        try {
+            selector = Selector.open();
+        } catch (IOException e) {
+            log.debug("Not able to check reachability of discovered nodes", e);
+            return;
+        }
+
+        //host names are resolved while connecting, so the deadline must include the connect loop
+        final long deadline = System.currentTimeMillis() + timeoutMillis;
+        try {
+            int pending = 0;
+            for (ClusterNodeAddress address : addresses) {
+                if (System.currentTimeMillis() >= deadline) {
+                    log.trace("Reachability check timed out before node {} was probed", cacheKey(address));
+                    break;
+                }
+                if (connect(selector, address, results)) {
+                    pending++;
+                }
+            }
+
+            while (pending > 0) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+
+                selector.select(remaining);
+
+                final Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    final SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    finishConnect(key, results);
+                    pending--;
+                }
+            }
+
+            //connects which did not finish before the deadline count as unreachable
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid()) {
+                    putResult((String) key.attachment(), false, results);
+                    close((SocketChannel) key.channel());
+                }
+            }
+
+        } catch (IOException e) {
+            log.debug("Not able to check reachability of discovered nodes", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                close((SocketChannel) key.channel());
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.trace("Not able to close selector", e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the connect is pending and registered with the selector
+     */
+    private boolean connect(final Selector selector, final ClusterNodeAddress address, final Map<String, Boolean> results) {
+        final String cacheKey = cacheKey(address);
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(new InetSocketAddress(address.getHost(), address.getPort()))) {
+                putResult(cacheKey, true, results);
+                close(channel);
+                return false;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, cacheKey);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.trace("Node {} is not reachable: {}", cacheKey, e.getMessage());
+            putResult(cacheKey, false, results);
+            close(channel);
+            return false;
+        }
+    }
+
+    private void finishConnect(final SelectionKey key, final Map<String, Boolean> results) {
+        final String cacheKey = (String) key.attachment();
+        final SocketChannel channel = (SocketChannel) key.channel();
+        try {
+            putResult(cacheKey, channel.finishConnect(), results);
+        } catch (IOException e) {
+            log.trace("Node {} is not reachable: {}", cacheKey, e.getMessage());
+            putResult(cacheKey, false, results);
+        } finally {
+            key.cancel();
+            close(channel);
+        }
+    }
+
+    private void putResult(final String cacheKey, final boolean reachable, final Map<String, Boolean> results) {
+        results.put(cacheKey, reachable);
+        if (reachabilityCache != null) {
+            reachabilityCache.put(cacheKey, reachable);
+        }
+    }
+
+    private void close(final SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.trace("Not able to close socket channel", e);
+        }
+    }
+
+    private String cacheKey(final ClusterNodeAddress address) {
+        return address.getHost() + ":" + address.getPort();
+    }
+
+}
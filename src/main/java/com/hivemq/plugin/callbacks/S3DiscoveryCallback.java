@@ -1,27 +1,21 @@
 package com.hivemq.plugin.callbacks;
 
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.S3ClientOptions;
-import com.amazonaws.services.s3.model.*;
-import com.amazonaws.util.StringInputStream;
+import com.google.common.base.Function;
 import com.google.common.io.BaseEncoding;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.*;
 import com.hivemq.plugin.configuration.Configuration;
+import com.hivemq.plugin.storage.DiscoveryStorage;
 import com.hivemq.spi.callback.cluster.ClusterDiscoveryCallback;
 import com.hivemq.spi.callback.cluster.ClusterNodeAddress;
-import com.hivemq.spi.services.PluginExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /**
  * @author Christoph Schäbel
@@ -32,25 +26,38 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
     private static final String SEPARATOR = "||||";
     private static final String SEPARATOR_REGEX = "\\|\\|\\|\\|";
     private static final String VERSION = "1";
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
 
-    private final AmazonS3 s3;
+    private final DiscoveryStorage storage;
     private final Configuration configuration;
-    private final String bucketName;
     private String objectKey;
+    private String clusterPrefix;
+    private String clusterName;
     private String clusterId;
     private ClusterNodeAddress ownAddress;
-    private final PluginExecutorService pluginExecutorService;
+    private ScheduledFuture<?> updateFuture;
+    private final ScheduledExecutorService updateExecutorService;
+    private final ListeningExecutorService ioExecutorService;
+    private final NodeReachabilityChecker reachabilityChecker;
 
     @Inject
-    public S3DiscoveryCallback(final AmazonS3 s3,
-                               final Configuration configuration,
-                               final PluginExecutorService pluginExecutorService) {
-        this.s3 = s3;
-        this.s3.setEndpoint(configuration.getEndpoint());
-        this.s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(configuration.withPathStyleAccess()));
+    public S3DiscoveryCallback(final DiscoveryStorage storage,
+                               final Configuration configuration) {
+        this.storage = storage;
         this.configuration = configuration;
-        this.pluginExecutorService = pluginExecutorService;
-        this.bucketName = configuration.getBucketName();
+        //storage requests are blocking, they run on pools owned by this plugin instead of threads HiveMQ shares
+        //with other plugins. Each concurrent request uses one thread of the pool.
+        //the update of the own information has its own thread, so it is never queued behind slow reads
+        this.updateExecutorService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("s3-discovery-update-%d").setDaemon(true).build());
+        this.ioExecutorService = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+                configuration.getMaxConcurrentRequests(),
+                new ThreadFactoryBuilder().setNameFormat("s3-discovery-io-%d").setDaemon(true).build()));
+
+        final long reachabilityCheckTimeout = configuration.getReachabilityCheckTimeout();
+        this.reachabilityChecker = reachabilityCheckTimeout > 0
+                ? new NodeReachabilityChecker(reachabilityCheckTimeout, configuration.getReachabilityCacheTtl())
+                : null;
     }
 
     @Override
@@ -58,18 +65,20 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
 
         this.clusterId = clusterId;
         this.ownAddress = ownAddress;
-        objectKey = configuration.getFilePrefix() + clusterId;
+        clusterName = configuration.getClusterName();
+        clusterPrefix = configuration.getClusterPrefix();
+        objectKey = clusterPrefix + clusterId;
 
-        saveOwnInformationToS3();
+        saveOwnInformation();
 
 
         final long updateInterval = configuration.getOwnInformationUpdateInterval();
         if (updateInterval > 0) {
             //schedule Task to update
-            pluginExecutorService.scheduleAtFixedRate(new Runnable() {
+            updateFuture = updateExecutorService.scheduleAtFixedRate(new Runnable() {
                 @Override
                 public void run() {
-                    saveOwnInformationToS3();
+                    saveOwnInformation();
                 }
             }, updateInterval, updateInterval, TimeUnit.MINUTES);
         }
@@ -78,29 +87,53 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
     @Override
     public ListenableFuture<List<ClusterNodeAddress>> getNodeAddresses() {
 
-        final List<ClusterNodeAddress> addresses = new ArrayList<>();
+        final ListenableFuture<List<String>> keysFuture;
+        try {
+            keysFuture = ioExecutorService.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() throws IOException {
+                    return storage.listKeys(clusterPrefix);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return Futures.immediateFailedFuture(e);
+        }
 
-        final ObjectListing objectListing = s3.listObjects(bucketName, configuration.getFilePrefix());
+        final ListenableFuture<List<ClusterNodeAddress>> addressesFuture = Futures.transformAsync(keysFuture,
+                new AsyncFunction<List<String>, List<ClusterNodeAddress>>() {
+                    @Override
+                    public ListenableFuture<List<ClusterNodeAddress>> apply(final List<String> keys) {
+                        return readAllFiles(keys);
+                    }
+                });
 
-        readAllFiles(addresses, objectListing);
+        if (reachabilityChecker == null) {
+            return addressesFuture;
+        }
 
-        return Futures.immediateFuture(addresses);
+        return Futures.transform(addressesFuture, new Function<List<ClusterNodeAddress>, List<ClusterNodeAddress>>() {
+            @Override
+            public List<ClusterNodeAddress> apply(final List<ClusterNodeAddress> addresses) {
+                try {
+                    return reachabilityChecker.sortByReachability(addresses);
+                } catch (RuntimeException e) {
+                    log.debug("Not able to check reachability of discovered nodes", e);
+                    return addresses;
+                }
+            }
+        }, ioExecutorService);
     }
 
-    private void saveOwnInformationToS3() {
+    private void saveOwnInformation() {
         try {
 
             final String content = createFileContent(clusterId, ownAddress);
-            final StringInputStream input;
-            input = new StringInputStream(content);
-            final ObjectMetadata metadata = new ObjectMetadata();
-            metadata.setContentLength(input.available());
 
-            s3.putObject(bucketName, objectKey, input, metadata);
-            log.debug("S3 node information updated");
+            storage.write(objectKey, content);
+            log.debug("Node information updated");
 
         } catch (Exception e) {
-            log.error("Not able to save node information to S3");
+            log.error("Not able to save node information");
             log.debug("Original exception", e);
         }
     }
@@ -110,48 +143,58 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
                 + Long.toString(System.currentTimeMillis()) + SEPARATOR
                 + clusterId + SEPARATOR
                 + ownAddress.getHost() + SEPARATOR
-                + ownAddress.getPort() + SEPARATOR;
+                + ownAddress.getPort() + SEPARATOR
+                + clusterName + SEPARATOR;
 
         return BaseEncoding.base64().encode(content.getBytes(StandardCharsets.UTF_8));
     }
 
 
-    private void readAllFiles(final List<ClusterNodeAddress> addresses, final ObjectListing objectListing) {
-        for (S3ObjectSummary objectSummary : objectListing.getObjectSummaries()) {
-            try {
-
-                final String key = objectSummary.getKey();
-                final S3Object object;
-                try {
-                    object = s3.getObject(bucketName, key);
-                } catch (AmazonS3Exception e) {
-                    log.debug("Not able to read file {} from S3: {}", key, e.getMessage());
-                    continue;
+    /**
+     * Reads all files in parallel, files which can not be read or parsed are left out of the result.
+     */
+    private ListenableFuture<List<ClusterNodeAddress>> readAllFiles(final List<String> keys) {
+        final List<ListenableFuture<ClusterNodeAddress>> addressFutures = new ArrayList<>(keys.size());
+        for (final String key : keys) {
+            addressFutures.add(ioExecutorService.submit(new Callable<ClusterNodeAddress>() {
+                @Override
+                public ClusterNodeAddress call() {
+                    return readFile(key);
                 }
+            }));
+        }
 
-                final S3ObjectInputStream objectContent = object.getObjectContent();
-
-                final String fileContent = new BufferedReader(new InputStreamReader(objectContent)).readLine();
+        return Futures.transform(Futures.successfulAsList(addressFutures),
+                new Function<List<ClusterNodeAddress>, List<ClusterNodeAddress>>() {
+                    @Override
+                    public List<ClusterNodeAddress> apply(final List<ClusterNodeAddress> results) {
+                        final List<ClusterNodeAddress> addresses = new ArrayList<>(results.size());
+                        for (ClusterNodeAddress address : results) {
+                            if (address != null) {
+                                addresses.add(address);
+                            }
+                        }
+                        return addresses;
+                    }
+                }, MoreExecutors.directExecutor());
+    }
 
-                final ClusterNodeAddress address = parseFileContent(fileContent, key);
-                if (address != null) {
-                    addresses.add(address);
-                }
+    private ClusterNodeAddress readFile(final String key) {
+        try {
 
-                try {
-                    objectContent.close();
-                } catch (IOException e) {
-                    log.trace("Not able to close S3 input stream", e);
-                }
+            final String fileContent;
+            try {
+                fileContent = storage.read(key);
+            } catch (IOException e) {
+                log.debug("Not able to read file {}: {}", key, e.getMessage());
+                return null;
+            }
 
-                if (objectListing.isTruncated()) {
-                    final ObjectListing objectListingNext = s3.listNextBatchOfObjects(objectListing);
-                    readAllFiles(addresses, objectListingNext);
-                }
+            return parseFileContent(fileContent, key);
 
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        } catch (Exception e) {
+            log.debug("Not able to process file {}", key, e);
+            return null;
         }
     }
 
@@ -163,20 +206,31 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
 
         final String content;
         try {
-            final byte[] decode = BaseEncoding.base64().decode(fileContent);
+            final byte[] decode = BaseEncoding.base64().decode(fileContent.trim());
             if (decode == null) {
-                log.debug("Not able to parse contents from S3-object '{}'", key);
+                log.debug("Not able to parse contents from file '{}'", key);
                 return null;
             }
             content = new String(decode, StandardCharsets.UTF_8);
         } catch (IllegalArgumentException e) {
-            log.debug("Not able to parse contents from S3-object '{}'", key);
+            log.debug("Not able to parse contents from file '{}'", key);
             return null;
         }
 
         final String[] split = content.split(SEPARATOR_REGEX);
-        if (split.length < 4) {
-            log.debug("Not able to parse contents from S3-object '{}'", key);
+        if (split.length < 5) {
+            log.debug("Not able to parse contents from file '{}'", key);
+            return null;
+        }
+
+        if (!key.equals(clusterPrefix + split[2])) {
+            log.debug("File '{}' does not match the node id '{}' it contains, ignoring it", key, split[2]);
+            return null;
+        }
+
+        final String clusterNameFromFile = split.length > 5 ? split[5] : "";
+        if (!clusterName.equals(clusterNameFromFile)) {
+            log.debug("File '{}' belongs to cluster '{}', ignoring it", key, clusterNameFromFile);
             return null;
         }
 
@@ -185,15 +239,15 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
         if (expirationMinutes > 0) {
             final long expirationFromFile = Long.parseLong(split[1]);
             if (expirationFromFile + (expirationMinutes * 60000) < System.currentTimeMillis()) {
-                log.debug("S3 object {} expired, deleting it.", key);
-                s3.deleteObject(bucketName, key);
+                log.debug("File {} expired, deleting it.", key);
+                deleteIfUnchanged(key, fileContent);
                 return null;
             }
         }
 
         final String host = split[3];
         if (host.length() < 1) {
-            log.debug("Not able to parse contents from S3-object '{}'", key);
+            log.debug("Not able to parse contents from file '{}'", key);
             return null;
         }
 
@@ -201,19 +255,49 @@ public class S3DiscoveryCallback implements ClusterDiscoveryCallback {
         try {
             port = Integer.parseInt(split[4]);
         } catch (NumberFormatException e) {
-            log.debug("Not able to parse contents from S3-object '{}'", key);
+            log.debug("Not able to parse contents from file '{}'", key);
             return null;
         }
 
         return new ClusterNodeAddress(host, port);
     }
 
+    /**
+     * Only deletes the file if the node did not update it since it was read.
+     */
+    private void deleteIfUnchanged(final String key, final String fileContent) {
+        try {
+            if (!storage.writeIfUnchanged(key, fileContent, null)) {
+                log.debug("File {} was updated in the meantime, not deleting it.", key);
+            }
+        } catch (IOException e) {
+            log.debug("Not able to delete expired file {}", key, e);
+        }
+    }
+
     @Override
     public void destroy() {
+        if (updateFuture != null) {
+            updateFuture.cancel(false);
+        }
+        //pending reads are not needed anymore
+        ioExecutorService.shutdownNow();
+        updateExecutorService.shutdown();
+        try {
+            //a running update must not write the own information again after it was deleted
+            if (!updateExecutorService.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.debug("Update of own node information did not finish in time, interrupting it");
+                updateExecutorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            updateExecutorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
         try {
-            s3.deleteObject(bucketName, objectKey);
+            storage.delete(objectKey);
         } catch (Exception e) {
-            log.error("Not able to delete object from S3");
+            log.error("Not able to delete own node information");
             log.debug("Original exception", e);
         }
     }
@@ -30,6 +30,9 @@ import java.util.Properties;
 public class Configuration {
 
     private static final Logger log = LoggerFactory.getLogger(Configuration.class);
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+    private static final String CLUSTER_NAME_INVALID_CHARACTER = "|";
+    private static final long DEFAULT_REACHABILITY_CACHE_TTL = 10L;
 
     private final Properties properties;
 
@@ -54,6 +57,25 @@ public class Configuration {
         }
     }
 
+    public StorageType getStorageType() {
+
+        try {
+            final String property = getProperty("storage-type");
+            if (property == null) {
+                return StorageType.S3;
+            }
+
+            return StorageType.fromName(property);
+        } catch (IllegalArgumentException e) {
+            log.error("Not able to initialize S3 Plugin", e);
+            return null;
+        }
+    }
+
+    public String getStorageDirectory() {
+        return getProperty("storage-directory");
+    }
+
     public Regions getRegion() {
         try {
             final String property = getProperty("s3-bucket-region");
@@ -82,6 +104,45 @@ public class Configuration {
         return property;
     }
 
+    /**
+     * The name of the HiveMQ cluster this node belongs to. If set, the node files are stored
+     * under <code>file-prefix + cluster-name + "/"</code>, so that several clusters can share
+     * the same bucket and prefix without reading each others files.
+     *
+     * @return the configured cluster name or an empty String if no valid cluster name is configured
+     */
+    public String getClusterName() {
+        final String property;
+
+        if (System.getenv("S3_CLUSTER_NAME") != null) {
+            property = System.getenv("S3_CLUSTER_NAME");
+        } else if (getProperty("cluster-name") != null) {
+            property = getProperty("cluster-name");
+        } else {
+            property = "";
+        }
+
+        //the cluster name is stored in the '||||'-separated node file, so it must not contain '|'
+        if (property.contains(CLUSTER_NAME_INVALID_CHARACTER)) {
+            log.error("Value for S3 cluster name configuration must not contain '{}', disabling cluster name", CLUSTER_NAME_INVALID_CHARACTER);
+            return "";
+        }
+
+        return property.trim();
+    }
+
+    /**
+     * @return the prefix under which the files of all nodes of this cluster are stored
+     */
+    public String getClusterPrefix() {
+        final String clusterName = getClusterName();
+        if (clusterName.isEmpty()) {
+            return getFilePrefix();
+        }
+
+        return getFilePrefix() + clusterName + "/";
+    }
+
     public long getExpirationMinutes() {
         final String property = getProperty("file-expiration");
         if (property == null) {
@@ -120,6 +181,63 @@ public class Configuration {
         }
     }
 
+    public int getMaxConcurrentRequests() {
+        final String property = getProperty("max-concurrent-requests");
+        if (property == null) {
+            return DEFAULT_MAX_CONCURRENT_REQUESTS;
+        }
+
+        try {
+            final int value = Integer.parseInt(property);
+            if (value < 1) {
+                log.error("Value for max concurrent requests configuration must be positive, using default {}", DEFAULT_MAX_CONCURRENT_REQUESTS);
+                return DEFAULT_MAX_CONCURRENT_REQUESTS;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            log.error("Not able to parse max concurrent requests configuration, using default {}", DEFAULT_MAX_CONCURRENT_REQUESTS);
+            return DEFAULT_MAX_CONCURRENT_REQUESTS;
+        }
+    }
+
+    public long getReachabilityCheckTimeout() {
+        final String property = getProperty("reachability-check-timeout");
+        if (property == null) {
+            return 0L;
+        }
+
+        try {
+            final long value = Long.parseLong(property);
+            if (value < 0) {
+                log.error("Value for reachability check timeout configuration must be positive or zero, disabling reachability check");
+                return 0;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            log.error("Not able to parse reachability check timeout configuration, disabling reachability check");
+            return 0L;
+        }
+    }
+
+    public long getReachabilityCacheTtl() {
+        final String property = getProperty("reachability-cache-ttl");
+        if (property == null) {
+            return DEFAULT_REACHABILITY_CACHE_TTL;
+        }
+
+        try {
+            final long value = Long.parseLong(property);
+            if (value < 0) {
+                log.error("Value for reachability cache TTL configuration must be positive or zero, using default {}", DEFAULT_REACHABILITY_CACHE_TTL);
+                return DEFAULT_REACHABILITY_CACHE_TTL;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            log.error("Not able to parse reachability cache TTL configuration, using default {}", DEFAULT_REACHABILITY_CACHE_TTL);
+            return DEFAULT_REACHABILITY_CACHE_TTL;
+        }
+    }
+
     public String getBucketName() {
         return getProperty("s3-bucket-name");
     }
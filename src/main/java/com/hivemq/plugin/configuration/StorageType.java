@@ -0,0 +1,33 @@
+package com.hivemq.plugin.configuration;
+
+public enum StorageType {
+
+    S3("s3"),
+    FILE_SYSTEM("file_system");
+
+    private String name;
+
+    StorageType(final String name) {
+        this.name = name;
+    }
+
+    public static StorageType fromName(final String name) {
+
+        for (StorageType type : values()) {
+            if (name.equals(type.getName())) {
+                return type;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown storage type " + name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
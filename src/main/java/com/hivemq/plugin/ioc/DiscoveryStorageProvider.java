@@ -0,0 +1,59 @@
+package com.hivemq.plugin.ioc;
+
+import com.hivemq.plugin.configuration.Configuration;
+import com.hivemq.plugin.configuration.StorageType;
+import com.hivemq.plugin.storage.DiscoveryStorage;
+import com.hivemq.plugin.storage.FileSystemDiscoveryStorage;
+import com.hivemq.plugin.storage.S3DiscoveryStorage;
+import com.hivemq.spi.exceptions.UnrecoverableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+/**
+ * Provides the {@link DiscoveryStorage} for the configured storage type. The S3 client is only
+ * created if S3 is used as storage.
+ */
+public class DiscoveryStorageProvider implements Provider<DiscoveryStorage> {
+
+    private static final Logger log = LoggerFactory.getLogger(DiscoveryStorageProvider.class);
+
+    private final Configuration configuration;
+    private final Provider<S3DiscoveryStorage> s3StorageProvider;
+    private final Provider<FileSystemDiscoveryStorage> fileSystemStorageProvider;
+
+    @Inject
+    public DiscoveryStorageProvider(final Configuration configuration,
+                                    final Provider<S3DiscoveryStorage> s3StorageProvider,
+                                    final Provider<FileSystemDiscoveryStorage> fileSystemStorageProvider) {
+        this.configuration = configuration;
+        this.s3StorageProvider = s3StorageProvider;
+        this.fileSystemStorageProvider = fileSystemStorageProvider;
+    }
+
+    @Override
+    public DiscoveryStorage get() {
+
+        final StorageType storageType = configuration.getStorageType();
+        if (storageType == null) {
+            log.error("Storage type is not configured correctly, shutting down HiveMQ");
+            throw new UnrecoverableException(false);
+        }
+
+        switch (storageType) {
+            case S3:
+                return s3StorageProvider.get();
+            case FILE_SYSTEM:
+                if (configuration.getStorageDirectory() == null) {
+                    log.error("Storage directory is not configured, shutting down HiveMQ");
+                    throw new UnrecoverableException(false);
+                }
+                return fileSystemStorageProvider.get();
+            default:
+                throw new IllegalArgumentException("Unknown storage type");
+        }
+    }
+
+}
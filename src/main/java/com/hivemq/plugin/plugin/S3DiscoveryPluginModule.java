@@ -17,11 +17,15 @@
 package com.hivemq.plugin.plugin;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.hivemq.plugin.ioc.DiscoveryStorageProvider;
 import com.hivemq.plugin.ioc.S3ClientProvider;
+import com.hivemq.plugin.storage.DiscoveryStorage;
 import com.hivemq.spi.HiveMQPluginModule;
 import com.hivemq.spi.PluginEntryPoint;
 import com.hivemq.spi.plugin.meta.Information;
 
+import javax.inject.Singleton;
+
 
 /**
  * This is the plugin module class, which handles the initialization and configuration
@@ -41,6 +45,7 @@ public class S3DiscoveryPluginModule extends HiveMQPluginModule {
     @Override
     protected void configurePlugin() {
         bind(AmazonS3.class).toProvider(S3ClientProvider.class);
+        bind(DiscoveryStorage.class).toProvider(DiscoveryStorageProvider.class).in(Singleton.class);
     }
 
     /**
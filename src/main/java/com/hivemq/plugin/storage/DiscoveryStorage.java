@@ -0,0 +1,59 @@
+package com.hivemq.plugin.storage;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage backend in which the discovery information of every node is kept.
+ * <p>
+ * Keys are '/'-separated paths. Listing a prefix only returns the keys directly below it,
+ * keys in deeper "folders" (e.g. from other clusters) are not returned.
+ */
+public interface DiscoveryStorage {
+
+    /**
+     * @param prefix the prefix of the keys to list
+     * @return all keys which start with the prefix and contain no further '/' after it
+     * @throws IOException if the storage is not reachable
+     */
+    List<String> listKeys(String prefix) throws IOException;
+
+    /**
+     * @param key the key to read
+     * @return the content stored for the key or <code>null</code> if the key does not exist
+     * @throws IOException if the storage is not reachable
+     */
+    String read(String key) throws IOException;
+
+    /**
+     * Creates or replaces the content for the key.
+     *
+     * @param key     the key to write
+     * @param content the content to store
+     * @throws IOException if the storage is not reachable
+     */
+    void write(String key, String content) throws IOException;
+
+    /**
+     * Deletes the key. Deleting a key which does not exist is not an error.
+     *
+     * @param key the key to delete
+     * @throws IOException if the storage is not reachable
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Replaces the content for the key only if its current content equals the expected content.
+     * <p>
+     * Passing <code>null</code> as expected content only writes the key if it does not exist,
+     * passing <code>null</code> as content deletes the key.
+     *
+     * @param key             the key to write
+     * @param expectedContent the content the key must currently have, <code>null</code> for no content
+     * @param content         the new content, <code>null</code> to delete the key
+     * @return <code>true</code> if the content was written, <code>false</code> if the current content differed
+     * @throws IOException if the storage is not reachable
+     */
+    boolean writeIfUnchanged(String key, String expectedContent, String content) throws IOException;
+
+}
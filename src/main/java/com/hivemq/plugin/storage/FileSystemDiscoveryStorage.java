@@ -0,0 +1,177 @@
+package com.hivemq.plugin.storage;
+
+import com.google.common.base.Objects;
+import com.hivemq.plugin.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DiscoveryStorage} which keeps the node information as files in a directory,
+ * usually a shared file system like NFS or EFS which is mounted on every node.
+ * <p>
+ * Files are written to a temporary file first and then atomically renamed, so readers never see
+ * partially written files. Modifications are guarded by a lock file in the folder of the modified file,
+ * so clusters in different folders do not wait for each other.
+ */
+public class FileSystemDiscoveryStorage implements DiscoveryStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSystemDiscoveryStorage.class);
+    private static final String DELIMITER = "/";
+    private static final String HIDDEN_FILE_PREFIX = ".";
+    private static final String LOCK_FILE_NAME = ".lock";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final long DEFAULT_LOCK_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final long LOCK_RETRY_INTERVAL_MILLIS = 50;
+
+    private final Path directory;
+    private final long lockTimeoutMillis;
+
+    @Inject
+    public FileSystemDiscoveryStorage(final Configuration configuration) {
+        this(Paths.get(configuration.getStorageDirectory()));
+    }
+
+    public FileSystemDiscoveryStorage(final Path directory) {
+        this(directory, DEFAULT_LOCK_TIMEOUT_MILLIS);
+    }
+
+    FileSystemDiscoveryStorage(final Path directory, final long lockTimeoutMillis) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    @Override
+    public List<String> listKeys(final String prefix) throws IOException {
+        final int lastDelimiter = prefix.lastIndexOf(DELIMITER);
+        final String folder = prefix.substring(0, lastDelimiter + 1);
+        final String namePrefix = prefix.substring(lastDelimiter + 1);
+
+        final List<String> keys = new ArrayList<>();
+        final Path folderPath = resolve(folder);
+        if (!Files.isDirectory(folderPath)) {
+            return keys;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folderPath)) {
+            for (Path file : stream) {
+                final String name = file.getFileName().toString();
+                if (name.startsWith(HIDDEN_FILE_PREFIX) || !name.startsWith(namePrefix) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                keys.add(folder + name);
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public String read(final String key) throws IOException {
+        try {
+            return new String(Files.readAllBytes(resolve(key)), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void write(final String key, final String content) throws IOException {
+        final Path file = resolve(key);
+        try (FileChannel ignored = lock(file.getParent())) {
+            writeAtomically(file, content);
+        }
+    }
+
+    @Override
+    public synchronized void delete(final String key) throws IOException {
+        final Path file = resolve(key);
+        try (FileChannel ignored = lock(file.getParent())) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Override
+    public synchronized boolean writeIfUnchanged(final String key, final String expectedContent, final String content) throws IOException {
+        final Path file = resolve(key);
+        try (FileChannel ignored = lock(file.getParent())) {
+            if (!Objects.equal(read(key), expectedContent)) {
+                log.trace("Content of file {} changed, not writing it", key);
+                return false;
+            }
+
+            if (content == null) {
+                Files.deleteIfExists(file);
+            } else {
+                writeAtomically(file, content);
+            }
+            return true;
+        }
+    }
+
+    private void writeAtomically(final Path file, final String content) throws IOException {
+        //Files.write honours the umask, so other users sharing the directory can read the file after the rename
+        final Path tempFile = file.resolveSibling(HIDDEN_FILE_PREFIX + file.getFileName() + "." + UUID.randomUUID() + TEMP_FILE_SUFFIX);
+        try {
+            Files.write(tempFile, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Locks the folder for all nodes sharing it. Closing the returned channel releases the lock.
+     *
+     * @throws IOException if the lock is not acquired within the lock timeout, e.g. because it is held by a crashed NFS client
+     */
+    private FileChannel lock(final Path folder) throws IOException {
+        Files.createDirectories(folder);
+        final FileChannel channel = FileChannel.open(folder.resolve(LOCK_FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            final long deadline = System.currentTimeMillis() + lockTimeoutMillis;
+            while (true) {
+                try {
+                    final FileLock lock = channel.tryLock();
+                    if (lock != null) {
+                        return channel;
+                    }
+                } catch (OverlappingFileLockException e) {
+                    //held by another channel in this JVM
+                }
+
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IOException("Not able to lock folder " + folder + " within " + lockTimeoutMillis + "ms");
+                }
+                Thread.sleep(LOCK_RETRY_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            channel.close();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while locking folder " + folder, e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private Path resolve(final String key) throws IOException {
+        final Path path = directory.resolve(key).normalize();
+        if (!path.startsWith(directory)) {
+            throw new IOException("Key " + key + " is outside of the storage directory " + directory);
+        }
+        return path;
+    }
+
+}
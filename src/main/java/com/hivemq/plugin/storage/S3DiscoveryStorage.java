@@ -0,0 +1,132 @@
+package com.hivemq.plugin.storage;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.S3ClientOptions;
+import com.amazonaws.services.s3.model.*;
+import com.amazonaws.util.StringInputStream;
+import com.google.common.base.Objects;
+import com.google.common.io.CharStreams;
+import com.hivemq.plugin.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DiscoveryStorage} which keeps the node information as objects in an S3 bucket.
+ */
+public class S3DiscoveryStorage implements DiscoveryStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(S3DiscoveryStorage.class);
+    private static final String DELIMITER = "/";
+    private static final int NOT_FOUND = 404;
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+
+    @Inject
+    public S3DiscoveryStorage(final AmazonS3 s3, final Configuration configuration) {
+        this.s3 = s3;
+        this.s3.setEndpoint(configuration.getEndpoint());
+        this.s3.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(configuration.withPathStyleAccess()));
+        this.bucketName = configuration.getBucketName();
+    }
+
+    @Override
+    public List<String> listKeys(final String prefix) throws IOException {
+        try {
+            final List<String> keys = new ArrayList<>();
+
+            //the delimiter keeps the listing to this cluster's files, other clusters sharing the prefix live in sub-folders
+            final ListObjectsRequest listObjectsRequest = new ListObjectsRequest()
+                    .withBucketName(bucketName)
+                    .withPrefix(prefix)
+                    .withDelimiter(DELIMITER);
+
+            ObjectListing objectListing = s3.listObjects(listObjectsRequest);
+            addKeys(keys, objectListing);
+
+            while (objectListing.isTruncated()) {
+                objectListing = s3.listNextBatchOfObjects(objectListing);
+                addKeys(keys, objectListing);
+            }
+
+            return keys;
+        } catch (AmazonClientException e) {
+            throw new IOException("Not able to list objects with prefix " + prefix + " from S3", e);
+        }
+    }
+
+    @Override
+    public String read(final String key) throws IOException {
+        final S3Object object;
+        try {
+            object = s3.getObject(bucketName, key);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+            throw new IOException("Not able to read object " + key + " from S3", e);
+        } catch (AmazonClientException e) {
+            throw new IOException("Not able to read object " + key + " from S3", e);
+        }
+
+        try (S3ObjectInputStream objectContent = object.getObjectContent()) {
+            return CharStreams.toString(new InputStreamReader(objectContent, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void write(final String key, final String content) throws IOException {
+        try {
+            final StringInputStream input = new StringInputStream(content);
+            final ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(input.available());
+
+            s3.putObject(bucketName, key, input, metadata);
+        } catch (AmazonClientException e) {
+            throw new IOException("Not able to write object " + key + " to S3", e);
+        }
+    }
+
+    @Override
+    public void delete(final String key) throws IOException {
+        try {
+            s3.deleteObject(bucketName, key);
+        } catch (AmazonClientException e) {
+            throw new IOException("Not able to delete object " + key + " from S3", e);
+        }
+    }
+
+    /**
+     * S3 offers no conditional writes, so the content is compared and replaced in two requests.
+     * A concurrent write between these requests is not detected.
+     */
+    @Override
+    public boolean writeIfUnchanged(final String key, final String expectedContent, final String content) throws IOException {
+        if (!Objects.equal(read(key), expectedContent)) {
+            log.trace("Content of S3 object {} changed, not writing it", key);
+            return false;
+        }
+
+        if (content == null) {
+            delete(key);
+        } else {
+            write(key, content);
+        }
+        return true;
+    }
+
+    private void addKeys(final List<String> keys, final ObjectListing objectListing) {
+        for (S3ObjectSummary objectSummary : objectListing.getObjectSummaries()) {
+            keys.add(objectSummary.getKey());
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.hivemq.plugin.callbacks;
+
+import com.hivemq.spi.callback.cluster.ClusterNodeAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NodeReachabilityCheckerTest {
+
+    private static final long TIMEOUT_MILLIS = 500;
+
+    private final List<ServerSocket> serverSockets = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        serverSockets.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (ServerSocket serverSocket : serverSockets) {
+            serverSocket.close();
+        }
+    }
+
+    @Test
+    public void test_reachable_nodes_first_and_order_kept_within_groups() throws Exception {
+        final NodeReachabilityChecker checker = new NodeReachabilityChecker(TIMEOUT_MILLIS, 0);
+        final ClusterNodeAddress closed1 = closedAddress();
+        final ClusterNodeAddress open1 = openAddress();
+        final ClusterNodeAddress closed2 = closedAddress();
+        final ClusterNodeAddress open2 = openAddress();
+
+        final List<ClusterNodeAddress> sorted = checker.sortByReachability(Arrays.asList(closed1, open1, closed2, open2));
+
+        assertEquals(Arrays.asList(open1, open2, closed1, closed2), sorted);
+    }
+
+    @Test
+    public void test_all_reachable_keeps_order() throws Exception {
+        final NodeReachabilityChecker checker = new NodeReachabilityChecker(TIMEOUT_MILLIS, 0);
+        final ClusterNodeAddress open1 = openAddress();
+        final ClusterNodeAddress open2 = openAddress();
+        final ClusterNodeAddress open3 = openAddress();
+
+        assertEquals(Arrays.asList(open3, open1, open2), checker.sortByReachability(Arrays.asList(open3, open1, open2)));
+    }
+
+    @Test
+    public void test_cache_ttl_zero_probes_every_time() throws Exception {
+        final NodeReachabilityChecker checker = new NodeReachabilityChecker(TIMEOUT_MILLIS, 0);
+        final ClusterNodeAddress closed = closedAddress();
+        final ServerSocket serverSocket = openServerSocket();
+        final ClusterNodeAddress open = address(serverSocket.getLocalPort());
+
+        assertEquals(Arrays.asList(open, closed), checker.sortByReachability(Arrays.asList(closed, open)));
+
+        serverSocket.close();
+
+        assertEquals(Arrays.asList(closed, open), checker.sortByReachability(Arrays.asList(closed, open)));
+    }
+
+    @Test
+    public void test_cache_hit_skips_probe() throws Exception {
+        final NodeReachabilityChecker checker = new NodeReachabilityChecker(TIMEOUT_MILLIS, 60);
+        final ClusterNodeAddress closed = closedAddress();
+        final ServerSocket serverSocket = openServerSocket();
+        final ClusterNodeAddress open = address(serverSocket.getLocalPort());
+
+        assertEquals(Arrays.asList(open, closed), checker.sortByReachability(Arrays.asList(closed, open)));
+
+        serverSocket.close();
+
+        //the node is still reported reachable from the cache
+        assertEquals(Arrays.asList(open, closed), checker.sortByReachability(Arrays.asList(closed, open)));
+    }
+
+    @Test
+    public void test_unresolvable_host_is_unreachable() throws Exception {
+        final NodeReachabilityChecker checker = new NodeReachabilityChecker(TIMEOUT_MILLIS, 0);
+        final ClusterNodeAddress unresolvable = new ClusterNodeAddress("no.such.host.invalid", 7800);
+        final ClusterNodeAddress open = openAddress();
+
+        assertEquals(Arrays.asList(open, unresolvable), checker.sortByReachability(Arrays.asList(unresolvable, open)));
+    }
+
+    @Test
+    public void test_check_finishes_within_deadline() throws Exception {
+        final NodeReachabilityChecker checker = new NodeReachabilityChecker(TIMEOUT_MILLIS, 0);
+        final List<ClusterNodeAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            addresses.add(closedAddress());
+            addresses.add(openAddress());
+        }
+
+        final long start = System.currentTimeMillis();
+        final List<ClusterNodeAddress> sorted = checker.sortByReachability(addresses);
+
+        assertTrue(System.currentTimeMillis() - start < TIMEOUT_MILLIS + 1000);
+        assertEquals(addresses.size(), sorted.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(addresses.get(2 * i + 1), sorted.get(i));
+        }
+    }
+
+    private ClusterNodeAddress openAddress() throws IOException {
+        return address(openServerSocket().getLocalPort());
+    }
+
+    private ServerSocket openServerSocket() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        serverSockets.add(serverSocket);
+        return serverSocket;
+    }
+
+    private ClusterNodeAddress closedAddress() throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            return address(serverSocket.getLocalPort());
+        }
+    }
+
+    private ClusterNodeAddress address(final int port) {
+        return new ClusterNodeAddress("127.0.0.1", port);
+    }
+}
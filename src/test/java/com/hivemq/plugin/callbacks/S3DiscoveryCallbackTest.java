@@ -0,0 +1,210 @@
+package com.hivemq.plugin.callbacks;
+
+import com.google.common.io.BaseEncoding;
+import com.hivemq.plugin.configuration.Configuration;
+import com.hivemq.plugin.storage.DiscoveryStorage;
+import com.hivemq.plugin.storage.FileSystemDiscoveryStorage;
+import com.hivemq.spi.callback.cluster.ClusterNodeAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class S3DiscoveryCallbackTest {
+
+    private static final String CLUSTER_PREFIX = "nodes/cluster1/";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private FileSystemDiscoveryStorage storage;
+    private Configuration configuration;
+    private final List<S3DiscoveryCallback> callbacks = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        storage = new FileSystemDiscoveryStorage(temporaryFolder.newFolder("discovery").toPath());
+
+        configuration = mock(Configuration.class);
+        when(configuration.getClusterName()).thenReturn("cluster1");
+        when(configuration.getClusterPrefix()).thenReturn(CLUSTER_PREFIX);
+        when(configuration.getExpirationMinutes()).thenReturn(1L);
+        when(configuration.getMaxConcurrentRequests()).thenReturn(2);
+    }
+
+    @After
+    public void tearDown() {
+        for (S3DiscoveryCallback callback : callbacks) {
+            callback.destroy();
+        }
+    }
+
+    @Test
+    public void test_nodes_discover_each_other() throws Exception {
+        final S3DiscoveryCallback callback1 = createCallback("node1", 7800);
+        createCallback("node2", 7801);
+
+        final List<ClusterNodeAddress> addresses = getNodeAddresses(callback1);
+
+        assertEquals(2, addresses.size());
+        assertTrue(containsPort(addresses, 7800));
+        assertTrue(containsPort(addresses, 7801));
+    }
+
+    @Test
+    public void test_destroy_deletes_own_information() throws Exception {
+        final S3DiscoveryCallback callback1 = createCallback("node1", 7800);
+        final S3DiscoveryCallback callback2 = createCallback("node2", 7801);
+
+        callback2.destroy();
+
+        assertNull(storage.read(CLUSTER_PREFIX + "node2"));
+        assertEquals(1, getNodeAddresses(callback1).size());
+    }
+
+    @Test
+    public void test_expired_file_is_ignored_and_deleted() throws Exception {
+        final S3DiscoveryCallback callback = createCallback("node1", 7800);
+        final long expired = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(2);
+        storage.write(CLUSTER_PREFIX + "node2", fileContent(expired, "node2", 7801, "cluster1"));
+
+        final List<ClusterNodeAddress> addresses = getNodeAddresses(callback);
+
+        assertEquals(1, addresses.size());
+        assertEquals(7800, addresses.get(0).getPort());
+        assertNull(storage.read(CLUSTER_PREFIX + "node2"));
+    }
+
+    @Test
+    public void test_file_of_other_cluster_is_ignored() throws Exception {
+        final S3DiscoveryCallback callback = createCallback("node1", 7800);
+        final String content = fileContent(System.currentTimeMillis(), "node2", 7801, "cluster2");
+        storage.write(CLUSTER_PREFIX + "node2", content);
+
+        final List<ClusterNodeAddress> addresses = getNodeAddresses(callback);
+
+        assertEquals(1, addresses.size());
+        assertEquals(7800, addresses.get(0).getPort());
+        assertEquals(content, storage.read(CLUSTER_PREFIX + "node2"));
+    }
+
+    @Test
+    public void test_file_with_other_node_id_is_ignored() throws Exception {
+        final S3DiscoveryCallback callback = createCallback("node1", 7800);
+        storage.write(CLUSTER_PREFIX + "node2", fileContent(System.currentTimeMillis(), "node3", 7801, "cluster1"));
+
+        final List<ClusterNodeAddress> addresses = getNodeAddresses(callback);
+
+        assertEquals(1, addresses.size());
+        assertEquals(7800, addresses.get(0).getPort());
+    }
+
+    @Test
+    public void test_files_of_other_clusters_are_not_listed() throws Exception {
+        final S3DiscoveryCallback callback = createCallback("node1", 7800);
+        storage.write("nodes/cluster2/node2", fileContent(System.currentTimeMillis(), "node2", 7801, "cluster2"));
+
+        assertEquals(1, getNodeAddresses(callback).size());
+    }
+
+    @Test
+    public void test_unparseable_file_is_ignored() throws Exception {
+        final S3DiscoveryCallback callback = createCallback("node1", 7800);
+        storage.write(CLUSTER_PREFIX + "node2", "not base64 !");
+
+        assertEquals(1, getNodeAddresses(callback).size());
+    }
+
+    @Test
+    public void test_reachable_nodes_are_returned_first() throws Exception {
+        when(configuration.getReachabilityCheckTimeout()).thenReturn(500L);
+        final int closedPort;
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            closedPort = serverSocket.getLocalPort();
+        }
+
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            final int openPort = serverSocket.getLocalPort();
+            final S3DiscoveryCallback callback = createCallback("node1", closedPort);
+            createCallback("node2", openPort);
+
+            final List<ClusterNodeAddress> addresses = getNodeAddresses(callback);
+
+            assertEquals(2, addresses.size());
+            assertEquals(openPort, addresses.get(0).getPort());
+            assertEquals(closedPort, addresses.get(1).getPort());
+        }
+    }
+
+    @Test
+    public void test_failed_listing_fails_future() throws Exception {
+        final DiscoveryStorage failingStorage = mock(DiscoveryStorage.class);
+        final IOException failure = new IOException("storage not reachable");
+        when(failingStorage.listKeys(anyString())).thenThrow(failure);
+        final S3DiscoveryCallback callback = new S3DiscoveryCallback(failingStorage, configuration);
+        callbacks.add(callback);
+        callback.init("node1", new ClusterNodeAddress("127.0.0.1", 7800));
+
+        try {
+            getNodeAddresses(callback);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void test_get_node_addresses_after_destroy_fails_future() throws Exception {
+        final S3DiscoveryCallback callback = createCallback("node1", 7800);
+        callback.destroy();
+
+        try {
+            getNodeAddresses(callback);
+            fail("Expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    private S3DiscoveryCallback createCallback(final String clusterId, final int port) {
+        final S3DiscoveryCallback callback = new S3DiscoveryCallback(storage, configuration);
+        callbacks.add(callback);
+        callback.init(clusterId, new ClusterNodeAddress("127.0.0.1", port));
+        return callback;
+    }
+
+    private List<ClusterNodeAddress> getNodeAddresses(final S3DiscoveryCallback callback) throws Exception {
+        return callback.getNodeAddresses().get(10, TimeUnit.SECONDS);
+    }
+
+    private boolean containsPort(final List<ClusterNodeAddress> addresses, final int port) {
+        for (ClusterNodeAddress address : addresses) {
+            if (address.getPort() == port) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String fileContent(final long timestamp, final String clusterId, final int port, final String clusterName) {
+        final String content = "1||||" + timestamp + "||||" + clusterId + "||||127.0.0.1||||" + port + "||||" + clusterName + "||||";
+        return BaseEncoding.base64().encode(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.hivemq.plugin.configuration;
+
+import com.hivemq.spi.config.SystemInformation;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class ConfigurationTest {
+
+    private PluginReader pluginReader;
+
+    @Before
+    public void setUp() {
+        pluginReader = new PluginReader(mock(SystemInformation.class));
+        pluginReader.getProperties().setProperty("file-prefix", "nodes/");
+    }
+
+    @Test
+    public void test_cluster_name_not_configured() {
+        final Configuration configuration = new Configuration(pluginReader);
+
+        assertEquals("", configuration.getClusterName());
+        assertEquals("nodes/", configuration.getClusterPrefix());
+    }
+
+    @Test
+    public void test_cluster_name_configured() {
+        pluginReader.getProperties().setProperty("cluster-name", " cluster1 ");
+        final Configuration configuration = new Configuration(pluginReader);
+
+        assertEquals("cluster1", configuration.getClusterName());
+        assertEquals("nodes/cluster1/", configuration.getClusterPrefix());
+    }
+
+    @Test
+    public void test_cluster_name_with_separator_is_rejected() {
+        pluginReader.getProperties().setProperty("cluster-name", "cluster||||1");
+        final Configuration configuration = new Configuration(pluginReader);
+
+        assertEquals("", configuration.getClusterName());
+        assertEquals("nodes/", configuration.getClusterPrefix());
+    }
+
+    @Test
+    public void test_cluster_name_with_pipe_is_rejected() {
+        pluginReader.getProperties().setProperty("cluster-name", "cluster|");
+        final Configuration configuration = new Configuration(pluginReader);
+
+        assertEquals("", configuration.getClusterName());
+    }
+}
@@ -0,0 +1,204 @@
+package com.hivemq.plugin.storage;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeNotNull;
+
+public class FileSystemDiscoveryStorageTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path directory;
+    private FileSystemDiscoveryStorage storage;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = temporaryFolder.newFolder("discovery").toPath();
+        storage = new FileSystemDiscoveryStorage(directory);
+    }
+
+    @Test
+    public void test_write_and_read() throws Exception {
+        storage.write("nodes/node1", "content1");
+        assertEquals("content1", storage.read("nodes/node1"));
+
+        storage.write("nodes/node1", "content2");
+        assertEquals("content2", storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_read_missing_key() throws Exception {
+        assertNull(storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_list_keys_only_returns_visible_files_directly_below_prefix() throws Exception {
+        storage.write("nodes/node1", "content");
+        storage.write("nodes/cluster2/node2", "content");
+        storage.write("other/node3", "content");
+        createFile("nodes/.node4123.tmp");
+        createFile("nodes/.lock");
+
+        final List<String> keys = storage.listKeys("nodes/");
+
+        assertEquals(Collections.singletonList("nodes/node1"), keys);
+    }
+
+    @Test
+    public void test_list_keys_with_name_prefix() throws Exception {
+        storage.write("nodes/hivemq-node1", "content");
+        storage.write("nodes/other-node2", "content");
+
+        assertEquals(Collections.singletonList("nodes/hivemq-node1"), storage.listKeys("nodes/hivemq-"));
+    }
+
+    @Test
+    public void test_list_keys_missing_folder() throws Exception {
+        assertTrue(storage.listKeys("nodes/").isEmpty());
+    }
+
+    @Test
+    public void test_write_leaves_no_temp_files() throws Exception {
+        storage.write("nodes/node1", "content");
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.resolve("nodes"))) {
+            for (Path file : stream) {
+                assertFalse(file.getFileName().toString().endsWith(".tmp"));
+            }
+        }
+    }
+
+    @Test
+    public void test_written_file_has_same_permissions_as_regular_file() throws Exception {
+        assumeNotNull(Files.getFileAttributeView(directory, PosixFileAttributeView.class));
+        createFile("nodes/reference");
+
+        storage.write("nodes/node1", "content");
+
+        //both honour the umask, a temp file created by Files.createTempFile would be rw------- instead
+        assertEquals(Files.getPosixFilePermissions(directory.resolve("nodes/reference")),
+                Files.getPosixFilePermissions(directory.resolve("nodes/node1")));
+    }
+
+    @Test
+    public void test_write_fails_if_lock_is_not_acquired_in_time() throws Exception {
+        final FileSystemDiscoveryStorage storage = new FileSystemDiscoveryStorage(directory, 200);
+        final Path folder = Files.createDirectories(directory.resolve("nodes"));
+
+        try (FileChannel channel = FileChannel.open(folder.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.lock();
+
+            final long start = System.currentTimeMillis();
+            try {
+                storage.write("nodes/node1", "content");
+                fail("Expected IOException");
+            } catch (IOException e) {
+                assertTrue(System.currentTimeMillis() - start < 5000);
+            }
+        }
+
+        assertNull(storage.read("nodes/node1"));
+        storage.write("nodes/node1", "content");
+        assertEquals("content", storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_folders_are_locked_separately() throws Exception {
+        final FileSystemDiscoveryStorage storage = new FileSystemDiscoveryStorage(directory, 200);
+        final Path folder = Files.createDirectories(directory.resolve("nodes/cluster1"));
+
+        try (FileChannel channel = FileChannel.open(folder.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.lock();
+
+            storage.write("nodes/cluster2/node1", "content");
+        }
+
+        assertEquals("content", storage.read("nodes/cluster2/node1"));
+    }
+
+    @Test
+    public void test_delete() throws Exception {
+        storage.write("nodes/node1", "content");
+
+        storage.delete("nodes/node1");
+        storage.delete("nodes/node1");
+
+        assertNull(storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_write_if_unchanged_creates_absent_key() throws Exception {
+        assertTrue(storage.writeIfUnchanged("nodes/node1", null, "content"));
+        assertEquals("content", storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_write_if_unchanged_does_not_overwrite_existing_key_when_absent_expected() throws Exception {
+        storage.write("nodes/node1", "content");
+
+        assertFalse(storage.writeIfUnchanged("nodes/node1", null, "other"));
+        assertEquals("content", storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_write_if_unchanged_replaces_expected_content() throws Exception {
+        storage.write("nodes/node1", "content");
+
+        assertTrue(storage.writeIfUnchanged("nodes/node1", "content", "other"));
+        assertEquals("other", storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_write_if_unchanged_deletes_expected_content() throws Exception {
+        storage.write("nodes/node1", "content");
+
+        assertTrue(storage.writeIfUnchanged("nodes/node1", "content", null));
+        assertNull(storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_write_if_unchanged_does_not_delete_changed_content() throws Exception {
+        storage.write("nodes/node1", "updated");
+
+        assertFalse(storage.writeIfUnchanged("nodes/node1", "content", null));
+        assertEquals("updated", storage.read("nodes/node1"));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_read_key_outside_of_directory() throws Exception {
+        storage.read("../outside");
+    }
+
+    @Test(expected = IOException.class)
+    public void test_write_key_outside_of_directory() throws Exception {
+        storage.write("nodes/../../outside", "content");
+    }
+
+    @Test(expected = IOException.class)
+    public void test_list_keys_outside_of_directory() throws Exception {
+        storage.listKeys("../");
+    }
+
+    private void createFile(final String key) throws IOException {
+        final Path file = directory.resolve(key);
+        Files.createDirectories(file.getParent());
+        Files.write(file, "content".getBytes(StandardCharsets.UTF_8));
+    }
+
+}
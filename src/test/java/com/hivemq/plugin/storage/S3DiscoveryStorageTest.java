@@ -0,0 +1,142 @@
+package com.hivemq.plugin.storage;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.S3ClientOptions;
+import com.amazonaws.services.s3.model.*;
+import com.hivemq.plugin.configuration.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class S3DiscoveryStorageTest {
+
+    private static final String BUCKET = "bucket";
+
+    private AmazonS3 s3;
+    private S3DiscoveryStorage storage;
+
+    @Before
+    public void setUp() {
+        s3 = mock(AmazonS3.class);
+        final Configuration configuration = mock(Configuration.class);
+        when(configuration.getBucketName()).thenReturn(BUCKET);
+        when(configuration.getEndpoint()).thenReturn("s3.amazonaws.com");
+        storage = new S3DiscoveryStorage(s3, configuration);
+    }
+
+    @Test
+    public void test_constructor_configures_client() {
+        verify(s3).setEndpoint("s3.amazonaws.com");
+        verify(s3).setS3ClientOptions(any(S3ClientOptions.class));
+    }
+
+    @Test
+    public void test_list_keys_sends_prefix_and_delimiter() throws Exception {
+        when(s3.listObjects(any(ListObjectsRequest.class))).thenReturn(objectListing(false, "nodes/cluster1/node1"));
+
+        final List<String> keys = storage.listKeys("nodes/cluster1/");
+
+        final ArgumentCaptor<ListObjectsRequest> captor = ArgumentCaptor.forClass(ListObjectsRequest.class);
+        verify(s3).listObjects(captor.capture());
+        assertEquals(BUCKET, captor.getValue().getBucketName());
+        assertEquals("nodes/cluster1/", captor.getValue().getPrefix());
+        assertEquals("/", captor.getValue().getDelimiter());
+        assertEquals(Arrays.asList("nodes/cluster1/node1"), keys);
+    }
+
+    @Test
+    public void test_list_keys_collects_truncated_listing() throws Exception {
+        final ObjectListing first = objectListing(true, "nodes/node1", "nodes/node2");
+        final ObjectListing second = objectListing(true, "nodes/node3");
+        final ObjectListing third = objectListing(false, "nodes/node4");
+        when(s3.listObjects(any(ListObjectsRequest.class))).thenReturn(first);
+        when(s3.listNextBatchOfObjects(first)).thenReturn(second);
+        when(s3.listNextBatchOfObjects(second)).thenReturn(third);
+
+        final List<String> keys = storage.listKeys("nodes/");
+
+        assertEquals(Arrays.asList("nodes/node1", "nodes/node2", "nodes/node3", "nodes/node4"), keys);
+        verify(s3, times(1)).listObjects(any(ListObjectsRequest.class));
+        verify(s3, times(2)).listNextBatchOfObjects(any(ObjectListing.class));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_list_keys_wraps_client_exception() throws Exception {
+        when(s3.listObjects(any(ListObjectsRequest.class))).thenThrow(new AmazonClientException("failure"));
+
+        storage.listKeys("nodes/");
+    }
+
+    @Test
+    public void test_read() throws Exception {
+        final S3Object object = new S3Object();
+        object.setObjectContent(new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8)));
+        when(s3.getObject(BUCKET, "nodes/node1")).thenReturn(object);
+
+        assertEquals("content", storage.read("nodes/node1"));
+    }
+
+    @Test
+    public void test_read_not_found_returns_null() throws Exception {
+        final AmazonS3Exception notFound = new AmazonS3Exception("Not Found");
+        notFound.setStatusCode(404);
+        when(s3.getObject(BUCKET, "nodes/node1")).thenThrow(notFound);
+
+        assertNull(storage.read("nodes/node1"));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_read_wraps_s3_exception() throws Exception {
+        final AmazonS3Exception forbidden = new AmazonS3Exception("Forbidden");
+        forbidden.setStatusCode(403);
+        when(s3.getObject(BUCKET, "nodes/node1")).thenThrow(forbidden);
+
+        storage.read("nodes/node1");
+    }
+
+    @Test(expected = IOException.class)
+    public void test_read_wraps_client_exception() throws Exception {
+        when(s3.getObject(BUCKET, "nodes/node1")).thenThrow(new AmazonClientException("failure"));
+
+        storage.read("nodes/node1");
+    }
+
+    @Test(expected = IOException.class)
+    public void test_write_wraps_client_exception() throws Exception {
+        when(s3.putObject(anyString(), anyString(), any(InputStream.class), any(ObjectMetadata.class)))
+                .thenThrow(new AmazonClientException("failure"));
+
+        storage.write("nodes/node1", "content");
+    }
+
+    @Test(expected = IOException.class)
+    public void test_delete_wraps_client_exception() throws Exception {
+        doThrow(new AmazonClientException("failure")).when(s3).deleteObject(BUCKET, "nodes/node1");
+
+        storage.delete("nodes/node1");
+    }
+
+    private ObjectListing objectListing(final boolean truncated, final String... keys) {
+        final ObjectListing objectListing = new ObjectListing();
+        objectListing.setTruncated(truncated);
+        for (String key : keys) {
+            final S3ObjectSummary summary = new S3ObjectSummary();
+            summary.setKey(key);
+            objectListing.getObjectSummaries().add(summary);
+        }
+        return objectListing;
+    }
+}